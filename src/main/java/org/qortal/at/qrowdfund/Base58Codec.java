@@ -0,0 +1,310 @@
+package org.qortal.at.qrowdfund;
+
+import java.util.Arrays;
+
+/**
+ * Base58 encoder/decoder producing identical output to {@link org.qortal.utils.Base58}.
+ * <p>
+ * Instead of dividing by 58 one byte at a time, values are held as big-endian unsigned 32-bit limbs
+ * and divided/multiplied by 58<sup>5</sup>, producing/consuming 5 digits per pass.
+ * <p>
+ * Instances reuse their internal buffers between calls so are <b>not</b> thread-safe.
+ * Static {@link #decodeAddress(CharSequence, byte[], int)} uses its own buffer so is thread-safe.
+ */
+public class Base58Codec {
+
+    private static final char[] ALPHABET = "123456789ABCDEFGHJKLMNPQRSTUVWXYZabcdefghijkmnopqrstuvwxyz".toCharArray();
+    private static final int[] DIGITS = new int[128];
+
+    static {
+        Arrays.fill(DIGITS, -1);
+
+        for (int i = 0; i < ALPHABET.length; ++i)
+            DIGITS[ALPHABET[i]] = i;
+    }
+
+    /** Number of base58 digits processed per limb pass. */
+    private static final int DIGITS_PER_CHUNK = 5;
+    /** 58^5, which fits in 30 bits */
+    private static final long CHUNK_BASE = 58L * 58L * 58L * 58L * 58L;
+    private static final long[] POWERS = { 1L, 58L, 58L * 58L, 58L * 58L * 58L, 58L * 58L * 58L * 58L, CHUNK_BASE };
+
+    private static final long LIMB_MASK = 0xffffffffL;
+
+    /** Length of Qortal address, in bytes, once decoded */
+    public static final int ADDRESS_LENGTH = 25;
+    /** Enough 32-bit limbs for a 25-byte address */
+    private static final int ADDRESS_LIMBS = (ADDRESS_LENGTH + 3) / 4;
+
+    private int[] limbs = new int[ADDRESS_LIMBS];
+    private char[] chars = new char[64];
+    private byte[] bytes = new byte[ADDRESS_LENGTH];
+
+    public String encode(byte[] input) {
+        return encode(input, 0, input.length);
+    }
+
+    public String encode(byte[] input, int offset, int length) {
+        int charsStart = encodeToChars(input, offset, length);
+
+        return new String(this.chars, charsStart, this.chars.length - charsStart);
+    }
+
+    /** Appends base58 encoding of {@code input} to {@code output}. */
+    public void encode(byte[] input, int offset, int length, StringBuilder output) {
+        int charsStart = encodeToChars(input, offset, length);
+
+        output.append(this.chars, charsStart, this.chars.length - charsStart);
+    }
+
+    /** Encodes into tail of internal char buffer, returning index of first char. */
+    private int encodeToChars(byte[] input, int offset, int length) {
+        int end = offset + length;
+
+        int zeros = 0;
+        while (offset + zeros < end && input[offset + zeros] == 0)
+            ++zeros;
+
+        int numBytes = length - zeros;
+        int numLimbs = (numBytes + 3) / 4;
+
+        // log(256) / log(58) is roughly 1.366, plus room for final partial chunk
+        int maxChars = zeros + numBytes * 138 / 100 + 1 + DIGITS_PER_CHUNK;
+        if (this.chars.length < maxChars)
+            this.chars = new char[maxChars];
+
+        int[] limbs = ensureLimbs(numLimbs);
+        toLimbs(input, offset + zeros, numBytes, limbs, numLimbs);
+
+        char[] chars = this.chars;
+        int charIndex = chars.length;
+
+        int firstLimb = 0;
+        while (firstLimb < numLimbs) {
+            // Divide by 58^5, in place
+            long remainder = 0;
+            for (int i = firstLimb; i < numLimbs; ++i) {
+                long current = (remainder << 32) | (limbs[i] & LIMB_MASK);
+                limbs[i] = (int) (current / CHUNK_BASE);
+                remainder = current % CHUNK_BASE;
+            }
+
+            while (firstLimb < numLimbs && limbs[firstLimb] == 0)
+                ++firstLimb;
+
+            // Emit 5 digits, least significant first
+            for (int d = 0; d < DIGITS_PER_CHUNK; ++d) {
+                chars[--charIndex] = ALPHABET[(int) (remainder % 58)];
+                remainder /= 58;
+            }
+        }
+
+        // Final chunk may have produced leading zero digits
+        while (charIndex < chars.length && chars[charIndex] == ALPHABET[0])
+            ++charIndex;
+
+        for (int i = 0; i < zeros; ++i)
+            chars[--charIndex] = ALPHABET[0];
+
+        return charIndex;
+    }
+
+    public byte[] decode(CharSequence input) {
+        int length = decodeToBytes(input);
+
+        return Arrays.copyOfRange(this.bytes, this.bytes.length - length, this.bytes.length);
+    }
+
+    /**
+     * Decodes {@code input} into {@code output} starting at {@code offset}.
+     *
+     * @return number of bytes written
+     * @throws NumberFormatException if {@code input} is not valid base58
+     * @throws IndexOutOfBoundsException if decoded bytes do not fit into {@code output}
+     */
+    public int decode(CharSequence input, byte[] output, int offset) {
+        int length = decodeToBytes(input);
+
+        if (offset < 0 || offset + length > output.length)
+            throw new IndexOutOfBoundsException("Decoded base58 too long for output");
+
+        System.arraycopy(this.bytes, this.bytes.length - length, output, offset, length);
+
+        return length;
+    }
+
+    /** Decodes into tail of internal byte buffer, returning number of bytes. */
+    private int decodeToBytes(CharSequence input) {
+        int length = input.length();
+
+        int zeros = 0;
+        while (zeros < length && input.charAt(zeros) == ALPHABET[0])
+            ++zeros;
+
+        int numDigits = length - zeros;
+        // log(58) / log(256) is roughly 0.733
+        int maxBytes = numDigits * 733 / 1000 + 1;
+        int numLimbs = (maxBytes + 3) / 4 + 1;
+
+        int[] limbs = ensureLimbs(numLimbs);
+        Arrays.fill(limbs, 0, numLimbs, 0);
+
+        fromDigits(input, zeros, length, limbs, numLimbs);
+
+        int numBytes = significantBytes(limbs, numLimbs);
+
+        if (this.bytes.length < zeros + numBytes)
+            this.bytes = new byte[zeros + numBytes];
+
+        byte[] bytes = this.bytes;
+        int bytesStart = bytes.length - numBytes;
+        fromLimbs(limbs, numLimbs, bytes, bytesStart, numBytes);
+
+        Arrays.fill(bytes, bytesStart - zeros, bytesStart, (byte) 0);
+
+        return zeros + numBytes;
+    }
+
+    /**
+     * Decodes 25-byte Qortal address directly into {@code output} starting at {@code offset}.
+     * <p>
+     * Uses fixed-size limbs with no intermediate byte arrays, but allocates a small limb array per call.
+     * Use {@link #decodeAddressInto(CharSequence, byte[], int)} on a reusable instance to avoid that.
+     *
+     * @throws NumberFormatException if {@code address} is not valid base58 or does not decode to exactly 25 bytes
+     */
+    public static void decodeAddress(CharSequence address, byte[] output, int offset) {
+        decodeAddress(address, output, offset, new int[ADDRESS_LIMBS + 1]);
+    }
+
+    /**
+     * Decodes 25-byte Qortal address directly into {@code output} starting at {@code offset}, reusing this instance's limbs.
+     *
+     * @throws NumberFormatException if {@code address} is not valid base58 or does not decode to exactly 25 bytes
+     */
+    public void decodeAddressInto(CharSequence address, byte[] output, int offset) {
+        int[] limbs = ensureLimbs(ADDRESS_LIMBS + 1);
+        Arrays.fill(limbs, 0, ADDRESS_LIMBS + 1, 0);
+
+        decodeAddress(address, output, offset, limbs);
+    }
+
+    private static void decodeAddress(CharSequence address, byte[] output, int offset, int[] limbs) {
+        int length = address.length();
+
+        int zeros = 0;
+        while (zeros < length && address.charAt(zeros) == ALPHABET[0])
+            ++zeros;
+
+        if (zeros > ADDRESS_LENGTH)
+            throw new NumberFormatException("Base58 address too long");
+
+        // One extra limb to catch overflow
+        int numLimbs = ADDRESS_LIMBS + 1;
+
+        fromDigits(address, zeros, length, limbs, numLimbs);
+
+        int numBytes = significantBytes(limbs, numLimbs);
+        if (zeros + numBytes != ADDRESS_LENGTH)
+            throw new NumberFormatException("Base58 address should decode to " + ADDRESS_LENGTH + " bytes");
+
+        Arrays.fill(output, offset, offset + zeros, (byte) 0);
+        fromLimbs(limbs, numLimbs, output, offset + zeros, numBytes);
+    }
+
+    private int[] ensureLimbs(int numLimbs) {
+        if (this.limbs.length < numLimbs)
+            this.limbs = new int[numLimbs];
+
+        return this.limbs;
+    }
+
+    /** Packs {@code length} bytes into {@code numLimbs} big-endian limbs. */
+    private static void toLimbs(byte[] input, int offset, int length, int[] limbs, int numLimbs) {
+        if (numLimbs == 0)
+            return;
+
+        int end = offset + length;
+        int index = offset;
+
+        // First limb might be partial
+        int firstLimbBytes = length - (numLimbs - 1) * 4;
+        int limb = 0;
+        for (int i = 0; i < firstLimbBytes; ++i)
+            limb = (limb << 8) | (input[index++] & 0xff);
+
+        limbs[0] = limb;
+
+        for (int l = 1; l < numLimbs; ++l) {
+            limbs[l] = (input[index] & 0xff) << 24
+                    | (input[index + 1] & 0xff) << 16
+                    | (input[index + 2] & 0xff) << 8
+                    | (input[index + 3] & 0xff);
+            index += 4;
+        }
+
+        assert index == end;
+    }
+
+    /** Accumulates base58 digits from {@code start} to {@code end} into zeroed {@code limbs}. */
+    private static void fromDigits(CharSequence input, int start, int end, int[] limbs, int numLimbs) {
+        int index = start;
+
+        // First chunk might be partial
+        int chunkLength = (end - start) % DIGITS_PER_CHUNK;
+        if (chunkLength == 0)
+            chunkLength = DIGITS_PER_CHUNK;
+
+        while (index < end) {
+            long chunk = 0;
+            for (int d = 0; d < chunkLength; ++d) {
+                char c = input.charAt(index);
+                int digit = c < 128 ? DIGITS[c] : -1;
+
+                if (digit < 0)
+                    throw new NumberFormatException("Illegal base58 character '" + c + "' at " + index);
+
+                chunk = chunk * 58 + digit;
+                ++index;
+            }
+
+            // limbs = limbs * 58^chunkLength + chunk
+            long multiplier = POWERS[chunkLength];
+            long carry = chunk;
+            for (int i = numLimbs - 1; i >= 0; --i) {
+                long current = (limbs[i] & LIMB_MASK) * multiplier + carry;
+                limbs[i] = (int) current;
+                carry = current >>> 32;
+            }
+
+            if (carry != 0)
+                throw new NumberFormatException("Base58 value too large");
+
+            chunkLength = DIGITS_PER_CHUNK;
+        }
+    }
+
+    /** Returns number of bytes needed to hold value in {@code limbs}, excluding leading zero bytes. */
+    private static int significantBytes(int[] limbs, int numLimbs) {
+        for (int l = 0; l < numLimbs; ++l)
+            if (limbs[l] != 0)
+                return (numLimbs - l - 1) * 4 + (32 - Integer.numberOfLeadingZeros(limbs[l]) + 7) / 8;
+
+        return 0;
+    }
+
+    /** Unpacks least significant {@code length} bytes from {@code limbs}. */
+    private static void fromLimbs(int[] limbs, int numLimbs, byte[] output, int offset, int length) {
+        int index = offset + length;
+        int l = numLimbs - 1;
+
+        while (index > offset) {
+            int limb = limbs[l--];
+
+            for (int b = 0; b < 4 && index > offset; ++b) {
+                output[--index] = (byte) limb;
+                limb >>>= 8;
+            }
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package org.qortal.at.qrowdfund;
+
+import org.qortal.crypto.Crypto;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Memoises simulated qrowdfund AT state.
+ * <p>
+ * Entries are keyed by:
+ *  1. SHA256 of AT code bytes
+ *  2. AT data segment bytes
+ *  3. rolling hash of transactions sent to AT so far
+ * and hold the block height that AT has been simulated up to, as qrowdfund outcome depends on height
+ * (AT sleeps until cut-off height before paying awardee or refunding donors).
+ * <p>
+ * Values are packed {@link org.ciyam.at.MachineState} bytes, as returned by {@code MachineState.toBytes()},
+ * which can be reloaded using {@code MachineState.fromBytes()} to inspect outcome.
+ * <p>
+ * Cache also remembers each campaign's most recent entry, so a lookup only needs to hash transactions
+ * that arrived since. Entries keep the transactions they cover, and every one is compared before trusting that shortcut.
+ * If the caller's transaction list doesn't extend that entry's transactions,
+ * e.g. after a chain reorg, rolling hashes are rebuilt and the longest cached prefix is used instead.
+ * Either way, cached state is advanced to the requested height instead of re-simulating from deployment.
+ * <p>
+ * Memory use is bounded by total bytes held, with least-recently-used entries evicted first.
+ */
+public class CampaignOutcomeCache {
+
+    /** Rolling transaction hash before any transactions have been seen. */
+    private static final byte[] EMPTY_TRANSACTIONS_HASH = new byte[32];
+
+    /** Pseudo-height of freshly deployed AT, before any execution. */
+    public static final int DEPLOYED_HEIGHT = 0;
+
+    /**
+     * Runs AT simulation on behalf of cache.
+     * <p>
+     * Implementations are responsible for presenting transactions to AT via their {@link org.ciyam.at.API}.
+     */
+    public interface Simulator {
+        /** Returns packed AT state for freshly deployed AT, before any execution. */
+        byte[] deploy(byte[] codeBytes, byte[] dataBytes);
+
+        /**
+         * Returns packed AT state after running AT for each block after {@code fromHeight}, up to and including {@code toHeight}.
+         * <p>
+         * {@code fromHeight} is {@link CampaignOutcomeCache#DEPLOYED_HEIGHT} when starting from freshly deployed state.<br>
+         * {@code newTransactions} are those sent to AT in blocks after {@code fromHeight}, up to and including {@code toHeight}, in order.
+         * AT execution should stop early if AT finishes.
+         * <p>
+         * {@code stateBytes} is a private copy, so implementations are free to modify it.
+         */
+        byte[] advance(byte[] codeBytes, byte[] stateBytes, int fromHeight, int toHeight, List<byte[]> newTransactions);
+    }
+
+    private static class Campaign {
+        private final byte[] codeHash;
+        private final byte[] dataBytes;
+        private final int hashCode;
+
+        private Campaign(byte[] codeHash, byte[] dataBytes) {
+            this.codeHash = codeHash;
+            this.dataBytes = dataBytes;
+
+            this.hashCode = 31 * Arrays.hashCode(codeHash) + Arrays.hashCode(dataBytes);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other)
+                return true;
+
+            if (!(other instanceof Campaign))
+                return false;
+
+            Campaign otherCampaign = (Campaign) other;
+
+            return Arrays.equals(this.dataBytes, otherCampaign.dataBytes)
+                    && Arrays.equals(this.codeHash, otherCampaign.codeHash);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+    }
+
+    private static class Key {
+        private final Campaign campaign;
+        private final byte[] transactionsHash;
+        private final int hashCode;
+
+        private Key(Campaign campaign, byte[] transactionsHash) {
+            this.campaign = campaign;
+            this.transactionsHash = transactionsHash;
+
+            this.hashCode = 31 * campaign.hashCode + Arrays.hashCode(transactionsHash);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other)
+                return true;
+
+            if (!(other instanceof Key))
+                return false;
+
+            Key otherKey = (Key) other;
+
+            return Arrays.equals(this.transactionsHash, otherKey.transactionsHash)
+                    && this.campaign.equals(otherKey.campaign);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+    }
+
+    private static class Entry {
+        private final int transactionCount;
+        /** Identifying bytes of each transaction covered by this entry, in order. Never modified, so can be shared between entries. */
+        private final byte[][] transactions;
+        private final int height;
+        private final byte[] stateBytes;
+
+        private Entry(byte[][] transactions, int height, byte[] stateBytes) {
+            this.transactionCount = transactions.length;
+            this.transactions = transactions;
+            this.height = height;
+            this.stateBytes = stateBytes;
+        }
+
+        /**
+         * Returns whether {@code transactions} starts with this entry's transactions.
+         * <p>
+         * Every covered transaction is compared, as a reorg can replace any of them, not just the last.
+         */
+        private boolean isPrefixOf(List<byte[]> transactions) {
+            if (this.transactionCount > transactions.size())
+                return false;
+
+            for (int i = this.transactionCount - 1; i >= 0; --i)
+                if (!Arrays.equals(this.transactions[i], transactions.get(i)))
+                    return false;
+
+            return true;
+        }
+    }
+
+    private final long maxBytes;
+    private long currentBytes = 0;
+
+    // Access-ordered, so iteration starts with least-recently-used entry
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Key of entry covering most transactions, for each cached campaign */
+    private final Map<Campaign, Key> latestKeys = new HashMap<>();
+
+    private long hits = 0;
+    private long extensions = 0;
+    private long misses = 0;
+
+    /**
+     * @param maxBytes      Upper bound on keys and packed states held by cache
+     */
+    public CampaignOutcomeCache(long maxBytes) {
+        if (maxBytes <= 0)
+            throw new IllegalArgumentException("Cache size should be positive");
+
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns packed AT state at {@code height}, after AT has processed {@code transactions}, simulating only if necessary.
+     * <p>
+     * Cached state can only be advanced, not rewound, so asking for a height below
+     * that of a campaign's cached entries causes re-simulation from an earlier entry, or from deployment.
+     *
+     * @param codeBytes         AT code bytes
+     * @param dataBytes         AT data segment at deployment
+     * @param transactions      Identifying bytes (e.g. signatures) of all transactions sent to AT up to {@code height}, in order
+     * @param height            Block height to simulate up to
+     * @param simulator         Used for any blocks/transactions not already covered by cache
+     */
+    public byte[] getState(byte[] codeBytes, byte[] dataBytes, List<byte[]> transactions, int height, Simulator simulator) {
+        if (height < DEPLOYED_HEIGHT)
+            throw new IllegalArgumentException("Height should not be negative");
+
+        Campaign campaign = new Campaign(Crypto.digest(codeBytes), dataBytes.clone());
+        int numTransactions = transactions.size();
+
+        Key latestKey;
+        Entry latestEntry;
+        synchronized (this) {
+            latestKey = this.latestKeys.get(campaign);
+            latestEntry = latestKey == null ? null : this.entries.get(latestKey);
+        }
+
+        Key key = null;
+        Entry startEntry = null;
+
+        if (latestEntry != null && latestEntry.isPrefixOf(transactions)) {
+            // Only hash transactions that arrived since latest entry
+            byte[] transactionsHash = latestKey.transactionsHash;
+            for (int i = latestEntry.transactionCount; i < numTransactions; ++i)
+                transactionsHash = rollTransactionsHash(transactionsHash, transactions.get(i));
+
+            key = new Key(campaign, transactionsHash);
+
+            synchronized (this) {
+                Entry exactEntry = this.entries.get(key);
+
+                if (exactEntry != null && exactEntry.height <= height)
+                    startEntry = exactEntry;
+                else if (latestEntry.height <= height)
+                    startEntry = latestEntry;
+            }
+        }
+
+        if (startEntry == null) {
+            // Rolling hashes of every prefix of transactions, with prefixHashes[i] covering first i transactions
+            byte[][] prefixHashes = new byte[numTransactions + 1][];
+            prefixHashes[0] = EMPTY_TRANSACTIONS_HASH;
+            for (int i = 0; i < numTransactions; ++i)
+                prefixHashes[i + 1] = rollTransactionsHash(prefixHashes[i], transactions.get(i));
+
+            key = new Key(campaign, prefixHashes[numTransactions]);
+
+            // Find longest cached prefix that isn't beyond requested height
+            synchronized (this) {
+                for (int prefixLength = numTransactions; prefixLength >= 0 && startEntry == null; --prefixLength) {
+                    Entry entry = this.entries.get(new Key(campaign, prefixHashes[prefixLength]));
+
+                    if (entry != null && entry.height <= height)
+                        startEntry = entry;
+                }
+            }
+        }
+
+        boolean isHit = startEntry != null && startEntry.transactionCount == numTransactions && startEntry.height == height;
+
+        synchronized (this) {
+            if (startEntry == null)
+                ++this.misses;
+            else if (isHit)
+                ++this.hits;
+            else
+                ++this.extensions;
+        }
+
+        if (isHit)
+            return startEntry.stateBytes.clone();
+
+        byte[] stateBytes;
+        int fromHeight;
+        int fromCount;
+
+        if (startEntry == null) {
+            stateBytes = simulator.deploy(codeBytes, campaign.dataBytes.clone());
+            fromHeight = DEPLOYED_HEIGHT;
+            fromCount = 0;
+        } else {
+            stateBytes = startEntry.stateBytes.clone();
+            fromHeight = startEntry.height;
+            fromCount = startEntry.transactionCount;
+        }
+
+        if (fromHeight < height || fromCount < numTransactions)
+            stateBytes = simulator.advance(codeBytes, stateBytes, fromHeight, height, transactions.subList(fromCount, numTransactions));
+
+        // Start entry's transactions already match, so share those and only copy the rest
+        byte[][] entryTransactions = new byte[numTransactions][];
+        if (fromCount > 0)
+            System.arraycopy(startEntry.transactions, 0, entryTransactions, 0, fromCount);
+
+        for (int i = fromCount; i < numTransactions; ++i)
+            entryTransactions[i] = transactions.get(i).clone();
+
+        synchronized (this) {
+            put(key, new Entry(entryTransactions, height, stateBytes.clone()));
+        }
+
+        return stateBytes;
+    }
+
+    private void put(Key key, Entry entry) {
+        long entrySize = entrySize(key, entry);
+
+        // Too big to ever fit
+        if (entrySize > this.maxBytes)
+            return;
+
+        Entry previousEntry = this.entries.get(key);
+        if (previousEntry != null) {
+            // Keep whichever has been simulated further
+            if (previousEntry.height > entry.height)
+                return;
+
+            this.currentBytes -= entrySize(key, previousEntry);
+        }
+
+        this.entries.put(key, entry);
+        this.currentBytes += entrySize;
+
+        Key latestKey = this.latestKeys.get(key.campaign);
+        Entry latestEntry = latestKey == null ? null : this.entries.get(latestKey);
+        if (latestEntry == null || latestEntry.transactionCount <= entry.transactionCount)
+            this.latestKeys.put(key.campaign, key);
+
+        Iterator<Map.Entry<Key, Entry>> iterator = this.entries.entrySet().iterator();
+        while (this.currentBytes > this.maxBytes && iterator.hasNext()) {
+            Map.Entry<Key, Entry> eldest = iterator.next();
+            Key eldestKey = eldest.getKey();
+
+            this.currentBytes -= entrySize(eldestKey, eldest.getValue());
+            iterator.remove();
+
+            if (eldestKey.equals(this.latestKeys.get(eldestKey.campaign)))
+                this.latestKeys.remove(eldestKey.campaign);
+        }
+    }
+
+    private static long entrySize(Key key, Entry entry) {
+        long size = key.campaign.codeHash.length + key.campaign.dataBytes.length + key.transactionsHash.length + entry.stateBytes.length;
+
+        // Transactions shared with other entries are counted by each of them
+        for (byte[] transaction : entry.transactions)
+            size += transaction.length;
+
+        return size;
+    }
+
+    private static byte[] rollTransactionsHash(byte[] previousHash, byte[] transaction) {
+        byte[] input = Arrays.copyOf(previousHash, previousHash.length + transaction.length);
+        System.arraycopy(transaction, 0, input, previousHash.length, transaction.length);
+
+        return Crypto.digest(input);
+    }
+
+    /** Removes all entries, but keeps statistics. */
+    public synchronized void clear() {
+        this.entries.clear();
+        this.latestKeys.clear();
+        this.currentBytes = 0;
+    }
+
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    public synchronized long getCurrentBytes() {
+        return this.currentBytes;
+    }
+
+    /** Lookups fully answered by cache. */
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    /** Lookups answered by advancing a cached state to new height and/or transactions. */
+    public synchronized long getExtensions() {
+        return this.extensions;
+    }
+
+    /** Lookups requiring simulation from deployment. */
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    /** Returns fraction of lookups fully answered by cache, or 0 if there have been no lookups. */
+    public synchronized double getHitRatio() {
+        long lookups = this.hits + this.extensions + this.misses;
+
+        return lookups == 0 ? 0.0 : (double) this.hits / lookups;
+    }
+
+    /** Returns fraction of lookups requiring simulation from deployment, or 0 if there have been no lookups. */
+    public synchronized double getMissRatio() {
+        long lookups = this.hits + this.extensions + this.misses;
+
+        return lookups == 0 ? 0.0 : (double) this.misses / lookups;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d entries, %d bytes, %d hits, %d extensions, %d misses", this.entries.size(), this.currentBytes, this.hits, this.extensions, this.misses);
+    }
+}
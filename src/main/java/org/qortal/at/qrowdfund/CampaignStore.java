@@ -0,0 +1,364 @@
+package org.qortal.at.qrowdfund;
+
+import org.ciyam.at.MachineState;
+import org.qortal.crypto.Crypto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Append-only archive of AT campaigns sharing the same code bytes.
+ * <p>
+ * Code bytes are stored once, in the file header, followed by fixed-length data segment records.
+ * Full creation bytes, identical to {@link MachineState#toCreationBytes(short, byte[], byte[], short, short, long)} output,
+ * are rebuilt on demand.
+ * <p>
+ * File layout (big-endian):
+ *      [magic "QFCS"]
+ *      [format version: short]
+ *      [CIYAM AT version: short]
+ *      [number of call stack pages: short]
+ *      [number of user stack pages: short]
+ *      [minimum activation amount: long]
+ *      [SHA256 of code bytes: 32 bytes]
+ *      [code length: int]
+ *      [data segment length: int]
+ *      [code bytes]
+ *      [data segment record 0]
+ *      [data segment record 1]
+ *      ...
+ * <p>
+ * Records are read via a memory-mapped buffer, so random access by campaign index is a simple offset calculation.
+ * Records appended after the buffer was mapped are read directly from the file until there are enough of them
+ * to be worth remapping, so mappings grow in large steps.
+ * <p>
+ * Stores can be opened read-only by any number of readers, or for appending by a single writer, enforced by a file lock.
+ * A trailing partial record, e.g. from an interrupted append, is ignored by readers and discarded when opened for appending.
+ */
+public class CampaignStore implements AutoCloseable {
+
+    private static final byte[] MAGIC = "QFCS".getBytes(StandardCharsets.US_ASCII);
+    private static final short FORMAT_VERSION = 1;
+
+    private static final int HASH_LENGTH = 32;
+    /** Header length, excluding code bytes */
+    private static final int FIXED_HEADER_LENGTH = MAGIC.length + 2 + 2 + 2 + 2 + 8 + HASH_LENGTH + 4 + 4;
+
+    /** Minimum number of unmapped records before records are remapped */
+    private static final int MIN_REMAP_RECORDS = 4096;
+
+    private final FileChannel channel;
+    private final boolean isReadOnly;
+
+    private final short ciyamAtVersion;
+    private final short numCallStackPages;
+    private final short numUserStackPages;
+    private final long minActivationAmount;
+    private final byte[] codeHash;
+    private final byte[] codeBytes;
+    private final int dataLength;
+
+    /** File offset of first data segment record */
+    private final long recordsOffset;
+    private final int maxRecords;
+
+    private int recordCount;
+
+    /** Read-only mapping of the first mappedCount records */
+    private MappedByteBuffer mappedRecords;
+    private int mappedCount = 0;
+    /** Number of times records have been mapped */
+    private int mappingCount = 0;
+
+    private CampaignStore(FileChannel channel, short ciyamAtVersion, short numCallStackPages, short numUserStackPages,
+            long minActivationAmount, byte[] codeHash, byte[] codeBytes, int dataLength, boolean isReadOnly) throws IOException {
+        this.channel = channel;
+        this.isReadOnly = isReadOnly;
+        this.ciyamAtVersion = ciyamAtVersion;
+        this.numCallStackPages = numCallStackPages;
+        this.numUserStackPages = numUserStackPages;
+        this.minActivationAmount = minActivationAmount;
+        this.codeHash = codeHash;
+        this.codeBytes = codeBytes;
+        this.dataLength = dataLength;
+
+        this.recordsOffset = FIXED_HEADER_LENGTH + codeBytes.length;
+        // A single mapping can't exceed 2GB
+        this.maxRecords = Integer.MAX_VALUE / dataLength;
+
+        long recordCount = (channel.size() - this.recordsOffset) / dataLength;
+        if (recordCount > this.maxRecords)
+            throw new IOException("Campaign store has too many records");
+
+        this.recordCount = (int) recordCount;
+
+        if (isReadOnly)
+            return;
+
+        FileLock appendLock;
+        try {
+            appendLock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            appendLock = null;
+        }
+
+        if (appendLock == null)
+            throw new IOException("Campaign store is already open for appending");
+
+        // Discard any partial record
+        channel.truncate(this.recordsOffset + (long) this.recordCount * dataLength);
+    }
+
+    /**
+     * Creates new, empty campaign store.
+     *
+     * @throws IOException if file already exists, or on I/O error
+     */
+    public static CampaignStore create(Path path, byte[] codeBytes, int dataLength, short ciyamAtVersion,
+            short numCallStackPages, short numUserStackPages, long minActivationAmount) throws IOException {
+        if (dataLength <= 0)
+            throw new IllegalArgumentException("Data segment length should be positive");
+
+        byte[] codeHash = Crypto.digest(codeBytes);
+
+        ByteBuffer header = ByteBuffer.allocate(FIXED_HEADER_LENGTH + codeBytes.length);
+        header.put(MAGIC);
+        header.putShort(FORMAT_VERSION);
+        header.putShort(ciyamAtVersion);
+        header.putShort(numCallStackPages);
+        header.putShort(numUserStackPages);
+        header.putLong(minActivationAmount);
+        header.put(codeHash);
+        header.putInt(codeBytes.length);
+        header.putInt(dataLength);
+        header.put(codeBytes);
+        header.flip();
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            while (header.hasRemaining())
+                channel.write(header);
+
+            return new CampaignStore(channel, ciyamAtVersion, numCallStackPages, numUserStackPages, minActivationAmount,
+                    codeHash, codeBytes.clone(), dataLength, false);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens existing campaign store, read-only.
+     * <p>
+     * Campaigns appended by other processes after opening are not visible.
+     *
+     * @throws IOException if file is not a valid campaign store, or on I/O error
+     */
+    public static CampaignStore open(Path path) throws IOException {
+        return open(path, true);
+    }
+
+    /**
+     * Opens existing campaign store for appending.
+     *
+     * @throws IOException if file is not a valid campaign store, is already open for appending, or on I/O error
+     */
+    public static CampaignStore openForAppend(Path path) throws IOException {
+        return open(path, false);
+    }
+
+    private static CampaignStore open(Path path, boolean isReadOnly) throws IOException {
+        FileChannel channel = isReadOnly
+                ? FileChannel.open(path, StandardOpenOption.READ)
+                : FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(FIXED_HEADER_LENGTH);
+            readFully(channel, header, 0);
+            header.flip();
+
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(MAGIC, magic))
+                throw new IOException("Not a campaign store");
+
+            short formatVersion = header.getShort();
+            if (formatVersion != FORMAT_VERSION)
+                throw new IOException(String.format("Unsupported campaign store version %d", formatVersion));
+
+            short ciyamAtVersion = header.getShort();
+            short numCallStackPages = header.getShort();
+            short numUserStackPages = header.getShort();
+            long minActivationAmount = header.getLong();
+
+            byte[] codeHash = new byte[HASH_LENGTH];
+            header.get(codeHash);
+
+            int codeLength = header.getInt();
+            int dataLength = header.getInt();
+            if (codeLength < 0 || dataLength <= 0 || FIXED_HEADER_LENGTH + (long) codeLength > channel.size())
+                throw new IOException("Corrupt campaign store header");
+
+            ByteBuffer codeBuffer = ByteBuffer.allocate(codeLength);
+            readFully(channel, codeBuffer, FIXED_HEADER_LENGTH);
+            byte[] codeBytes = codeBuffer.array();
+
+            if (!Arrays.equals(codeHash, Crypto.digest(codeBytes)))
+                throw new IOException("Campaign store code bytes don't match code hash");
+
+            return new CampaignStore(channel, ciyamAtVersion, numCallStackPages, numUserStackPages, minActivationAmount,
+                    codeHash, codeBytes, dataLength, isReadOnly);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens campaign store for current qrowdfund code, for appending, creating it if necessary.
+     *
+     * @throws IOException if existing store doesn't match current qrowdfund code and creation parameters, or on I/O error
+     */
+    public static CampaignStore openQrowdfund(Path path) throws IOException {
+        if (Files.notExists(path))
+            return create(path, Qrowdfund.getCodeBytes(), Qrowdfund.DATA_LENGTH, Qrowdfund.CIYAM_AT_VERSION,
+                    Qrowdfund.NUM_CALL_STACK_PAGES, Qrowdfund.NUM_USER_STACK_PAGES, Qrowdfund.MIN_ACTIVATION_AMOUNT);
+
+        CampaignStore store = openForAppend(path);
+
+        try {
+            if (!Arrays.equals(store.codeHash, Qrowdfund.getCodeHash()))
+                throw new IOException("Campaign store is for different qrowdfund code");
+
+            if (store.dataLength != Qrowdfund.DATA_LENGTH)
+                throw new IOException(String.format("Campaign store data segment length %d doesn't match qrowdfund's %d",
+                        store.dataLength, Qrowdfund.DATA_LENGTH));
+
+            if (store.ciyamAtVersion != Qrowdfund.CIYAM_AT_VERSION
+                    || store.numCallStackPages != Qrowdfund.NUM_CALL_STACK_PAGES
+                    || store.numUserStackPages != Qrowdfund.NUM_USER_STACK_PAGES
+                    || store.minActivationAmount != Qrowdfund.MIN_ACTIVATION_AMOUNT)
+                throw new IOException("Campaign store creation parameters don't match qrowdfund's");
+        } catch (IOException e) {
+            store.close();
+            throw e;
+        }
+
+        return store;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int bytesRead = channel.read(buffer, position);
+            if (bytesRead < 0)
+                throw new IOException("Unexpected end of campaign store");
+
+            position += bytesRead;
+        }
+    }
+
+    /**
+     * Appends campaign's data segment to store.
+     *
+     * @return index of new campaign
+     */
+    public synchronized int append(byte[] dataBytes) throws IOException {
+        if (dataBytes.length != this.dataLength)
+            throw new IllegalArgumentException(String.format("Data segment should be %d bytes", this.dataLength));
+
+        if (this.isReadOnly)
+            throw new IllegalStateException("Campaign store is open read-only");
+
+        if (this.recordCount >= this.maxRecords)
+            throw new IOException("Campaign store is full");
+
+        ByteBuffer buffer = ByteBuffer.wrap(dataBytes);
+        long position = this.recordsOffset + (long) this.recordCount * this.dataLength;
+
+        while (buffer.hasRemaining())
+            position += this.channel.write(buffer, position);
+
+        return this.recordCount++;
+    }
+
+    /** Copies data segment for campaign at {@code index} into {@code output}, starting at {@code offset}. */
+    public synchronized void getDataBytes(int index, byte[] output, int offset) throws IOException {
+        if (index < 0 || index >= this.recordCount)
+            throw new IndexOutOfBoundsException(String.format("Campaign index %d out of range (%d campaigns)", index, this.recordCount));
+
+        // After initial mapping, only remap once enough records have been appended, so number of mappings grows logarithmically
+        int unmappedCount = this.recordCount - this.mappedCount;
+        if (index >= this.mappedCount && (this.mappedRecords == null || unmappedCount >= Math.max(this.mappedCount, MIN_REMAP_RECORDS))) {
+            this.mappedRecords = this.channel.map(FileChannel.MapMode.READ_ONLY, this.recordsOffset, (long) this.recordCount * this.dataLength);
+            this.mappedCount = this.recordCount;
+            ++this.mappingCount;
+        }
+
+        if (index < this.mappedCount) {
+            this.mappedRecords.position(index * this.dataLength);
+            this.mappedRecords.get(output, offset, this.dataLength);
+            return;
+        }
+
+        // Recently appended record, not yet mapped
+        readFully(this.channel, ByteBuffer.wrap(output, offset, this.dataLength), this.recordsOffset + (long) index * this.dataLength);
+    }
+
+    public byte[] getDataBytes(int index) throws IOException {
+        byte[] dataBytes = new byte[this.dataLength];
+        getDataBytes(index, dataBytes, 0);
+        return dataBytes;
+    }
+
+    /** Returns creation bytes for campaign at {@code index}, as originally produced by {@link MachineState#toCreationBytes(short, byte[], byte[], short, short, long)}. */
+    public byte[] getCreationBytes(int index) throws IOException {
+        return MachineState.toCreationBytes(this.ciyamAtVersion, this.codeBytes, getDataBytes(index),
+                this.numCallStackPages, this.numUserStackPages, this.minActivationAmount);
+    }
+
+    /** Returns number of campaigns in store. */
+    public synchronized int size() {
+        return this.recordCount;
+    }
+
+    public int getDataLength() {
+        return this.dataLength;
+    }
+
+    public byte[] getCodeBytes() {
+        return this.codeBytes.clone();
+    }
+
+    public byte[] getCodeHash() {
+        return this.codeHash.clone();
+    }
+
+    public boolean isReadOnly() {
+        return this.isReadOnly;
+    }
+
+    /** Number of times records have been mapped, for testing. */
+    synchronized int getMappingCount() {
+        return this.mappingCount;
+    }
+
+    /** Forces appended records to storage device. */
+    public synchronized void flush() throws IOException {
+        this.channel.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.mappedRecords = null;
+        this.mappedCount = 0;
+        this.channel.close();
+    }
+}
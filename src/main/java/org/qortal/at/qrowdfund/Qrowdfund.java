@@ -4,7 +4,6 @@ import org.ciyam.at.*;
 import org.qortal.account.Account;
 import org.qortal.account.PublicKeyAccount;
 import org.qortal.crypto.Crypto;
-import org.qortal.utils.Base58;
 
 import java.math.BigDecimal;
 import java.nio.ByteBuffer;
@@ -45,6 +44,54 @@ import static org.ciyam.at.OpCode.calcOffset;
  */
 public class Qrowdfund {
 
+    // Labels for data segment addresses
+    private static final int addrSleepMinutes;
+    private static final int addrGoalAmount;
+
+    private static final int addrSleepUntilTimestamp;
+    private static final int addrSleepUntilHeight;
+
+    private static final int addrFinalAmount;
+
+    private static final int addrLastTxnTimestamp;
+    private static final int addrResult;
+    private static final int addrTxnType;
+    private static final int addrPaymentTxnType;
+    private static final int addrPaymentAmount;
+
+    private static final int addrAwardeeAddress;
+
+    /** Length of data segment, in bytes */
+    public static final int DATA_LENGTH;
+
+    static {
+        int addrCounter = 0;
+
+        addrSleepMinutes = addrCounter++;
+        addrGoalAmount = addrCounter++;
+
+        addrSleepUntilTimestamp = addrCounter++;
+        addrSleepUntilHeight = addrCounter++;
+
+        addrFinalAmount = addrCounter++;
+
+        addrLastTxnTimestamp = addrCounter++;
+        addrResult = addrCounter++;
+        addrTxnType = addrCounter++;
+        addrPaymentTxnType = addrCounter++;
+        addrPaymentAmount = addrCounter++;
+
+        addrAwardeeAddress = addrCounter; addrCounter += 4;
+
+        DATA_LENGTH = addrCounter * MachineState.VALUE_SIZE;
+    }
+
+    // Creation bytes header values
+    static final short CIYAM_AT_VERSION = 2;
+    static final short NUM_CALL_STACK_PAGES = 0;
+    static final short NUM_USER_STACK_PAGES = 0;
+    static final long MIN_ACTIVATION_AMOUNT = 0L;
+
     private static byte[] CODE_BYTES;
 
     /** SHA256 of AT code bytes */
@@ -58,6 +105,21 @@ public class Qrowdfund {
      * @param awardee           Qortal address of awardee
      */
     public static byte[] buildQortalAT(int sleepMinutes, long goalAmount, String awardee) {
+        byte[] dataBytes = buildDataBytes(sleepMinutes, goalAmount, awardee);
+
+        return MachineState.toCreationBytes(CIYAM_AT_VERSION, getCodeBytes(), dataBytes, NUM_CALL_STACK_PAGES, NUM_USER_STACK_PAGES, MIN_ACTIVATION_AMOUNT);
+    }
+
+    /**
+     * Returns data segment for qrowdfund AT.
+     * <p>
+     * Code bytes are identical for all qrowdfund ATs, so the data segment is all that distinguishes one campaign from another.
+     *
+     * @param sleepMinutes      Time period for allowing donations (roughly 1 block per minute)
+     * @param goalAmount        Minimum goal, in QORT, to trigger award after timeout
+     * @param awardee           Qortal address of awardee
+     */
+    public static byte[] buildDataBytes(int sleepMinutes, long goalAmount, String awardee) {
         if (sleepMinutes < 10 || sleepMinutes > 30 * 24 * 60)
             throw new IllegalArgumentException("Sleep period should be between 10 minutes and 1 month");
 
@@ -67,27 +129,8 @@ public class Qrowdfund {
         if (!Crypto.isValidAddress(awardee))
             throw new IllegalArgumentException("Awardee address should be a valid Qortal address");
 
-        // Labels for data segment addresses
-        int addrCounter = 0;
-
-        final int addrSleepMinutes = addrCounter++;
-        final int addrGoalAmount = addrCounter++;
-
-        final int addrSleepUntilTimestamp = addrCounter++;
-        final int addrSleepUntilHeight = addrCounter++;
-
-        final int addrFinalAmount = addrCounter++;
-
-        final int addrLastTxnTimestamp = addrCounter++;
-        final int addrResult = addrCounter++;
-        final int addrTxnType = addrCounter++;
-        final int addrPaymentTxnType = addrCounter++;
-        final int addrPaymentAmount = addrCounter++;
-
-        final int addrAwardeeAddress = addrCounter; addrCounter += 4;
-
         // Data segment
-        ByteBuffer dataByteBuffer = ByteBuffer.allocate(addrCounter * MachineState.VALUE_SIZE);
+        ByteBuffer dataByteBuffer = ByteBuffer.allocate(DATA_LENGTH);
 
         // Sleep period (minutes)
         dataByteBuffer.position(addrSleepMinutes * MachineState.VALUE_SIZE);
@@ -102,9 +145,30 @@ public class Qrowdfund {
         dataByteBuffer.putLong(API.ATTransactionType.PAYMENT.value);
 
         // Awardee address
-        dataByteBuffer.position(addrAwardeeAddress * MachineState.VALUE_SIZE);
-        dataByteBuffer.put(Base58.decode(awardee));
+        Base58Codec.decodeAddress(awardee, dataByteBuffer.array(), addrAwardeeAddress * MachineState.VALUE_SIZE);
+
+        return dataByteBuffer.array();
+    }
+
+    /** Returns code bytes for qrowdfund AT, compiling on first call. */
+    public static synchronized byte[] getCodeBytes() {
+        if (CODE_BYTES == null) {
+            CODE_BYTES = compileCode();
+            CODE_BYTES_HASH = Crypto.digest(CODE_BYTES);
+        }
+
+        return CODE_BYTES.clone();
+    }
+
+    /** Returns SHA256 of qrowdfund AT code bytes. */
+    public static synchronized byte[] getCodeHash() {
+        if (CODE_BYTES_HASH == null)
+            getCodeBytes();
+
+        return CODE_BYTES_HASH.clone();
+    }
 
+    private static byte[] compileCode() {
         // Code labels
         Integer labelRefundDonors = null;
         Integer labelTxnLoop = null;
@@ -214,33 +278,43 @@ public class Qrowdfund {
         byte[] codeBytes = new byte[codeByteBuffer.limit()];
         codeByteBuffer.get(codeBytes);
 
-        final short ciyamAtVersion = 2;
-        final short numCallStackPages = 0;
-        final short numUserStackPages = 0;
-        final long minActivationAmount = 0L;
-
-        return MachineState.toCreationBytes(ciyamAtVersion, codeBytes, dataByteBuffer.array(), numCallStackPages, numUserStackPages, minActivationAmount);
+        return codeBytes;
     }
 
+    private enum OutputFormat { BASE58, HEX, BINARY }
+
     private static void usage() {
-        System.err.println("usage: qrowdfund <timeout-minutes> <minimum-goal> <awardee-address>");
+        System.err.println("usage: qrowdfund [-x | -b] <timeout-minutes> <minimum-goal> <awardee-address>");
+        System.err.println("       -x: output creation bytes as hex, without header");
+        System.err.println("       -b: output raw creation bytes, without header");
         System.err.println("example: qrowdfund 1440 10.4 QdSnUy6sUiEnaN87dWmE92g1uQjrvPgrWG");
         System.err.println("         deadline in 1440 mins (1 day), minimum goal 10.4 QORT");
     }
 
     public static void main(String[] args) {
-        if (args.length != 3) {
+        OutputFormat outputFormat = OutputFormat.BASE58;
+        int argIndex = 0;
+
+        if (args.length > 0 && args[0].equals("-x")) {
+            outputFormat = OutputFormat.HEX;
+            ++argIndex;
+        } else if (args.length > 0 && args[0].equals("-b")) {
+            outputFormat = OutputFormat.BINARY;
+            ++argIndex;
+        }
+
+        if (args.length - argIndex != 3) {
             usage();
             System.exit(2);
         }
 
         int sleepMinutes;
         try {
-            sleepMinutes = Integer.parseInt(args[0]);
+            sleepMinutes = Integer.parseInt(args[argIndex]);
         } catch (NumberFormatException e) {
             usage();
             System.err.println();
-            System.err.printf("Entry window minutes '%s' invalid - should be integer larger than 10", args[0]);
+            System.err.printf("Entry window minutes '%s' invalid - should be integer larger than 10", args[argIndex]);
             System.exit(1);
             // not reached
             throw e;
@@ -248,17 +322,17 @@ public class Qrowdfund {
 
         long minimumGoal;
         try {
-            minimumGoal = new BigDecimal(args[1]).setScale(8).unscaledValue().longValue();
+            minimumGoal = new BigDecimal(args[argIndex + 1]).setScale(8).unscaledValue().longValue();
         } catch (NumberFormatException e) {
             usage();
             System.err.println();
-            System.err.printf("Minimum goal '%s' invalid - should be larger than 0.1 QORT", args[1]);
+            System.err.printf("Minimum goal '%s' invalid - should be larger than 0.1 QORT", args[argIndex + 1]);
             System.exit(1);
             // not reached
             throw e;
         }
 
-        String awardee = args[2];
+        String awardee = args[argIndex + 2];
 
         if (!Crypto.isValidAddress(awardee)) {
             usage();
@@ -268,6 +342,32 @@ public class Qrowdfund {
         }
 
         byte[] creationBytes = buildQortalAT(sleepMinutes, minimumGoal, awardee);
-        System.out.printf("Creation bytes:\n%s\n", Base58.encode(creationBytes));
+
+        switch (outputFormat) {
+            case HEX:
+                System.out.println(toHex(creationBytes));
+                break;
+
+            case BINARY:
+                System.out.write(creationBytes, 0, creationBytes.length);
+                System.out.flush();
+                break;
+
+            default:
+                System.out.printf("Creation bytes:\n%s\n", new Base58Codec().encode(creationBytes));
+                break;
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        final char[] hexDigits = "0123456789abcdef".toCharArray();
+        char[] hex = new char[bytes.length * 2];
+
+        for (int i = 0; i < bytes.length; ++i) {
+            hex[i * 2] = hexDigits[(bytes[i] >> 4) & 0x0f];
+            hex[i * 2 + 1] = hexDigits[bytes[i] & 0x0f];
+        }
+
+        return new String(hex);
     }
 }
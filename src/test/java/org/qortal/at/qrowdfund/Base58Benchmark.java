@@ -0,0 +1,67 @@
+package org.qortal.at.qrowdfund;
+
+import org.qortal.utils.Base58;
+
+import java.util.Arrays;
+
+/**
+ * Compares {@link Base58Codec} against {@link org.qortal.utils.Base58}.
+ * <p>
+ * Not a unit test - run manually, e.g.:<br>
+ * {@code java -cp 'target/classes:target/test-classes:target/dependency/*' org.qortal.at.qrowdfund.Base58Benchmark}
+ */
+public class Base58Benchmark {
+
+    private static final String AWARDEE_ADDRESS = "QdSnUy6sUiEnaN87dWmE92g1uQjrvPgrWG";
+
+    private static final int WARMUP_ROUNDS = 20_000;
+    private static final int ROUNDS = 100_000;
+
+    // Prevents JIT from discarding results
+    private static long sink = 0;
+
+    public static void main(String[] args) {
+        byte[] creationBytes = Qrowdfund.buildQortalAT(60, 10_4000_0000L, AWARDEE_ADDRESS);
+        String encodedCreationBytes = Base58.encode(creationBytes);
+
+        Base58Codec codec = new Base58Codec();
+
+        if (!codec.encode(creationBytes).equals(encodedCreationBytes) || !Arrays.equals(codec.decode(encodedCreationBytes), creationBytes))
+            throw new IllegalStateException("Base58Codec output differs from Base58");
+
+        System.out.printf("Creation bytes: %d bytes, %d base58 chars%n", creationBytes.length, encodedCreationBytes.length());
+
+        benchmark("Base58.encode(creation bytes)", () -> sink += Base58.encode(creationBytes).length());
+        benchmark("Base58Codec.encode(creation bytes)", () -> sink += codec.encode(creationBytes).length());
+
+        benchmark("Base58.decode(creation bytes)", () -> sink += Base58.decode(encodedCreationBytes).length);
+        benchmark("Base58Codec.decode(creation bytes)", () -> sink += codec.decode(encodedCreationBytes).length);
+
+        byte[] output = new byte[Base58Codec.ADDRESS_LENGTH];
+        benchmark("Base58.decode(address)", () -> sink += Base58.decode(AWARDEE_ADDRESS).length);
+        benchmark("Base58Codec.decodeAddress(address)", () -> {
+            Base58Codec.decodeAddress(AWARDEE_ADDRESS, output, 0);
+            sink += output[0];
+        });
+        benchmark("Base58Codec.decodeAddressInto(address)", () -> {
+            codec.decodeAddressInto(AWARDEE_ADDRESS, output, 0);
+            sink += output[0];
+        });
+
+        System.out.printf("(sink: %d)%n", sink);
+    }
+
+    private static void benchmark(String description, Runnable runnable) {
+        for (int i = 0; i < WARMUP_ROUNDS; ++i)
+            runnable.run();
+
+        long before = System.nanoTime();
+
+        for (int i = 0; i < ROUNDS; ++i)
+            runnable.run();
+
+        long nanosPerRound = (System.nanoTime() - before) / ROUNDS;
+
+        System.out.printf("%-40s %8d ns/op%n", description, nanosPerRound);
+    }
+}
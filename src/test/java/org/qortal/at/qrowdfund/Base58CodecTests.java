@@ -0,0 +1,101 @@
+package org.qortal.at.qrowdfund;
+
+import org.junit.Test;
+import org.qortal.utils.Base58;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class Base58CodecTests {
+
+    // Fixed seed so failures are reproducible
+    private static final long RANDOM_SEED = 0x51f9_3a7c_0de5_b58eL;
+
+    private static final String AWARDEE_ADDRESS = "QdSnUy6sUiEnaN87dWmE92g1uQjrvPgrWG";
+
+    @Test
+    public void encoding_matches_existing_implementation() {
+        Base58Codec codec = new Base58Codec();
+        Random random = new Random(RANDOM_SEED);
+
+        for (int length = 0; length < 400; ++length) {
+            byte[] input = new byte[length];
+            random.nextBytes(input);
+
+            // Exercise leading zero handling
+            for (int i = 0; i < length && i < length % 4; ++i)
+                input[i] = 0;
+
+            String expected = Base58.encode(input);
+
+            assertEquals(expected, codec.encode(input));
+            assertArrayEquals(input, codec.decode(expected));
+        }
+    }
+
+    @Test
+    public void all_zero_bytes() {
+        Base58Codec codec = new Base58Codec();
+        byte[] input = new byte[10];
+
+        assertEquals(Base58.encode(input), codec.encode(input));
+        assertArrayEquals(input, codec.decode(codec.encode(input)));
+    }
+
+    @Test
+    public void creation_bytes_match_existing_implementation() {
+        byte[] creationBytes = Qrowdfund.buildQortalAT(60, 10_4000_0000L, AWARDEE_ADDRESS);
+
+        assertEquals(Base58.encode(creationBytes), new Base58Codec().encode(creationBytes));
+    }
+
+    @Test
+    public void decode_into_offset() {
+        Base58Codec codec = new Base58Codec();
+        byte[] output = new byte[40];
+
+        int length = codec.decode(AWARDEE_ADDRESS, output, 10);
+
+        assertEquals(Base58Codec.ADDRESS_LENGTH, length);
+        assertArrayEquals(Base58.decode(AWARDEE_ADDRESS), Arrays.copyOfRange(output, 10, 10 + length));
+    }
+
+    @Test
+    public void address_fast_path() {
+        byte[] output = new byte[40];
+        Arrays.fill(output, (byte) 0xff);
+
+        Base58Codec.decodeAddress(AWARDEE_ADDRESS, output, 8);
+
+        assertArrayEquals(Base58.decode(AWARDEE_ADDRESS), Arrays.copyOfRange(output, 8, 8 + Base58Codec.ADDRESS_LENGTH));
+        assertEquals((byte) 0xff, output[7]);
+        assertEquals((byte) 0xff, output[8 + Base58Codec.ADDRESS_LENGTH]);
+    }
+
+    @Test
+    public void address_fast_path_reusing_instance() {
+        Base58Codec codec = new Base58Codec();
+        byte[] output = new byte[Base58Codec.ADDRESS_LENGTH];
+
+        // Longer decode first, so instance limbs hold leftover data
+        codec.decode("z".repeat(100));
+
+        for (int i = 0; i < 3; ++i) {
+            codec.decodeAddressInto(AWARDEE_ADDRESS, output, 0);
+            assertArrayEquals(Base58.decode(AWARDEE_ADDRESS), output);
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void address_wrong_length() {
+        Base58Codec.decodeAddress(AWARDEE_ADDRESS + "Q", new byte[32], 0);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void invalid_character() {
+        new Base58Codec().decode("Qd0nUy6s");
+    }
+
+}
@@ -0,0 +1,333 @@
+package org.qortal.at.qrowdfund;
+
+import org.ciyam.at.MachineState;
+import org.ciyam.at.test.ExecutableTest;
+import org.ciyam.at.test.QuietTestLoggerFactory;
+import org.ciyam.at.test.TestAPI;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CampaignOutcomeCacheTests {
+
+    private static final byte[] CODE_BYTES = "code".getBytes(StandardCharsets.UTF_8);
+
+    private static final int SLEEP_MINUTES = 10;
+    private static final long GOAL_AMOUNT = 20_0000_0000L; // 20 QORT
+    private static final String AWARDEE_ADDRESS = "QawardeeQQQQQQQQQQQQQQQQQQQQNPoZ8C";
+
+    /** Fake simulator where state is simply all data and transactions seen so far, plus height. */
+    private static class CountingSimulator implements CampaignOutcomeCache.Simulator {
+        int deployCount = 0;
+        int advanceCount = 0;
+        int transactionCount = 0;
+        int lastFromHeight = -1;
+
+        @Override
+        public byte[] deploy(byte[] codeBytes, byte[] dataBytes) {
+            ++deployCount;
+            return dataBytes.clone();
+        }
+
+        @Override
+        public byte[] advance(byte[] codeBytes, byte[] stateBytes, int fromHeight, int toHeight, List<byte[]> newTransactions) {
+            ++advanceCount;
+            lastFromHeight = fromHeight;
+
+            byte[] newState = stateBytes;
+            for (byte[] transaction : newTransactions) {
+                ++transactionCount;
+                newState = concat(newState, transaction);
+            }
+
+            return concat(newState, new byte[] { (byte) toHeight });
+        }
+    }
+
+    /**
+     * Simulator running real qrowdfund AT against {@link TestAPI} blockchain.
+     * <p>
+     * Heights count blocks since deployment. Donations are added to blockchain as their block is reached,
+     * so separate instances with the same donations produce identical chains.
+     * Also checks that cache passes exactly the transactions belonging to the blocks being simulated.
+     */
+    private static class TestApiSimulator implements CampaignOutcomeCache.Simulator {
+        final ExecutableTest test = new ExecutableTest();
+        final Map<Integer, List<TestAPI.TestTransaction>> donationsByHeight;
+
+        TestApiSimulator(Map<Integer, List<TestAPI.TestTransaction>> donationsByHeight) {
+            this.donationsByHeight = donationsByHeight;
+
+            test.loggerFactory = new QuietTestLoggerFactory();
+            test.api = new TestAPI(); // new blockchain
+
+            new TestAPI.TestAccount(AWARDEE_ADDRESS, 0L).addToMap(test.api.accounts);
+
+            for (int i = 0; i < 2; ++i)
+                new TestAPI.TestAccount(donorAddress(i), 100_0000_0000L).addToMap(test.api.accounts);
+        }
+
+        @Override
+        public byte[] deploy(byte[] codeBytes, byte[] dataBytes) {
+            byte[] creationBytes = MachineState.toCreationBytes(Qrowdfund.CIYAM_AT_VERSION, codeBytes, dataBytes,
+                    Qrowdfund.NUM_CALL_STACK_PAGES, Qrowdfund.NUM_USER_STACK_PAGES, Qrowdfund.MIN_ACTIVATION_AMOUNT);
+
+            return new MachineState(test.api, test.loggerFactory, creationBytes).toBytes();
+        }
+
+        @Override
+        public byte[] advance(byte[] codeBytes, byte[] stateBytes, int fromHeight, int toHeight, List<byte[]> newTransactions) {
+            test.codeBytes = codeBytes;
+            test.packedState = stateBytes;
+            test.state = MachineState.fromBytes(test.api, test.loggerFactory, stateBytes, codeBytes);
+
+            List<byte[]> expectedTransactions = new ArrayList<>();
+            for (int height = fromHeight + 1; height <= toHeight; ++height)
+                for (TestAPI.TestTransaction donation : donationsByHeight.getOrDefault(height, Collections.emptyList()))
+                    expectedTransactions.add(donation.txHash);
+
+            assertEquals(expectedTransactions.size(), newTransactions.size());
+            for (int i = 0; i < expectedTransactions.size(); ++i)
+                assertArrayEquals(expectedTransactions.get(i), newTransactions.get(i));
+
+            for (int height = fromHeight + 1; height <= toHeight && !test.state.isFinished(); ++height) {
+                for (TestAPI.TestTransaction donation : donationsByHeight.getOrDefault(height, Collections.emptyList()))
+                    test.api.addTransactionToCurrentBlock(donation);
+
+                test.execute_once();
+            }
+
+            return test.packedState;
+        }
+
+        MachineState load(byte[] codeBytes, byte[] stateBytes) {
+            return MachineState.fromBytes(test.api, test.loggerFactory, stateBytes, codeBytes);
+        }
+    }
+
+    private CountingSimulator simulator;
+
+    @Before
+    public void before() {
+        simulator = new CountingSimulator();
+    }
+
+    @Test
+    public void repeat_lookup_is_hit() {
+        CampaignOutcomeCache cache = new CampaignOutcomeCache(1_000_000L);
+        List<byte[]> transactions = transactions(3);
+
+        byte[] first = cache.getState(CODE_BYTES, data(1), transactions, 10, simulator);
+        byte[] second = cache.getState(CODE_BYTES, data(1), transactions, 10, simulator);
+
+        assertArrayEquals(first, second);
+        assertEquals(1, simulator.deployCount);
+        assertEquals(1, simulator.advanceCount);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0.5, cache.getHitRatio(), 0.0);
+    }
+
+    @Test
+    public void later_height_advances_cached_state() {
+        CampaignOutcomeCache cache = new CampaignOutcomeCache(1_000_000L);
+        List<byte[]> transactions = transactions(3);
+
+        cache.getState(CODE_BYTES, data(1), transactions, 10, simulator);
+        cache.getState(CODE_BYTES, data(1), transactions, 20, simulator);
+
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getExtensions());
+        assertEquals(1, simulator.deployCount);
+        assertEquals(10, simulator.lastFromHeight);
+        assertEquals(3, simulator.transactionCount);
+    }
+
+    @Test
+    public void new_transactions_extend_cached_state() {
+        CampaignOutcomeCache cache = new CampaignOutcomeCache(1_000_000L);
+        List<byte[]> transactions = transactions(5);
+
+        cache.getState(CODE_BYTES, data(1), transactions.subList(0, 3), 10, simulator);
+        byte[] extended = cache.getState(CODE_BYTES, data(1), transactions, 20, simulator);
+
+        // Only the 2 new transactions should have been simulated
+        assertEquals(1, simulator.deployCount);
+        assertEquals(5, simulator.transactionCount);
+        assertEquals(1, cache.getExtensions());
+
+        // Repeat lookup uses latest entry without rehashing from scratch
+        assertArrayEquals(extended, cache.getState(CODE_BYTES, data(1), transactions, 20, simulator));
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void diverging_transactions_fall_back_to_cached_prefix() {
+        CampaignOutcomeCache cache = new CampaignOutcomeCache(1_000_000L);
+        List<byte[]> transactions = transactions(4);
+
+        cache.getState(CODE_BYTES, data(1), transactions.subList(0, 2), 10, simulator);
+        cache.getState(CODE_BYTES, data(1), transactions.subList(0, 3), 20, simulator);
+
+        // Replace 3rd transaction, e.g. after reorg
+        List<byte[]> reorgTransactions = new ArrayList<>(transactions.subList(0, 2));
+        reorgTransactions.add(new byte[] { 99 });
+
+        byte[] state = cache.getState(CODE_BYTES, data(1), reorgTransactions, 20, simulator);
+
+        assertEquals(1, simulator.deployCount);
+        assertEquals(10, simulator.lastFromHeight);
+        assertEquals(2, cache.getExtensions());
+        assertEquals(99, state[state.length - 2]);
+    }
+
+    @Test
+    public void replaced_earlier_transaction_is_not_hit() {
+        CampaignOutcomeCache cache = new CampaignOutcomeCache(1_000_000L);
+        List<byte[]> transactions = transactions(2);
+
+        cache.getState(CODE_BYTES, data(1), transactions, 10, simulator);
+
+        // Replace 1st transaction but keep last, e.g. after reorg
+        List<byte[]> reorgTransactions = new ArrayList<>(transactions);
+        reorgTransactions.set(0, new byte[] { 99 });
+
+        byte[] state = cache.getState(CODE_BYTES, data(1), reorgTransactions, 10, simulator);
+
+        assertEquals(0, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, simulator.deployCount);
+        assertArrayEquals(concat(concat(concat(data(1), new byte[] { 99 }), transactions.get(1)), new byte[] { 10 }), state);
+    }
+
+    @Test
+    public void different_data_segments_are_distinct() {
+        CampaignOutcomeCache cache = new CampaignOutcomeCache(1_000_000L);
+        List<byte[]> transactions = transactions(2);
+
+        byte[] first = cache.getState(CODE_BYTES, data(1), transactions, 10, simulator);
+        byte[] second = cache.getState(CODE_BYTES, data(2), transactions, 10, simulator);
+
+        assertFalse(Arrays.equals(first, second));
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void least_recently_used_entry_is_evicted() {
+        CampaignOutcomeCache cache = new CampaignOutcomeCache(1_000_000L);
+        List<byte[]> transactions = new ArrayList<>();
+
+        cache.getState(CODE_BYTES, data(1), transactions, 10, simulator);
+        long entrySize = cache.getCurrentBytes();
+
+        cache = new CampaignOutcomeCache(entrySize * 2);
+        cache.getState(CODE_BYTES, data(1), transactions, 10, simulator);
+        cache.getState(CODE_BYTES, data(2), transactions, 10, simulator);
+        // Touch data(1) so data(2) becomes least-recently-used
+        cache.getState(CODE_BYTES, data(1), transactions, 10, simulator);
+        cache.getState(CODE_BYTES, data(3), transactions, 10, simulator);
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.getCurrentBytes() <= entrySize * 2);
+
+        long missesBefore = cache.getMisses();
+        cache.getState(CODE_BYTES, data(1), transactions, 10, simulator);
+        assertEquals(missesBefore, cache.getMisses());
+
+        cache.getState(CODE_BYTES, data(2), transactions, 10, simulator);
+        assertEquals(missesBefore + 1, cache.getMisses());
+    }
+
+    @Test
+    public void sleeping_campaign_is_not_stale_at_later_height() {
+        byte[] codeBytes = Qrowdfund.getCodeBytes();
+        byte[] dataBytes = Qrowdfund.buildDataBytes(SLEEP_MINUTES, GOAL_AMOUNT, AWARDEE_ADDRESS);
+        List<byte[]> noTransactions = Collections.emptyList();
+
+        TestApiSimulator testApiSimulator = new TestApiSimulator(new HashMap<>());
+        CampaignOutcomeCache cache = new CampaignOutcomeCache(1_000_000L);
+
+        byte[] sleepingState = cache.getState(codeBytes, dataBytes, noTransactions, 2, testApiSimulator);
+        assertTrue(testApiSimulator.load(codeBytes, sleepingState).isSleeping());
+
+        byte[] finishedState = cache.getState(codeBytes, dataBytes, noTransactions, SLEEP_MINUTES * 5, testApiSimulator);
+        assertTrue(testApiSimulator.load(codeBytes, finishedState).isFinished());
+
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getExtensions());
+    }
+
+    @Test
+    public void extended_state_matches_execution_from_deployment() {
+        byte[] codeBytes = Qrowdfund.getCodeBytes();
+        byte[] dataBytes = Qrowdfund.buildDataBytes(SLEEP_MINUTES, GOAL_AMOUNT, AWARDEE_ADDRESS);
+
+        byte[] firstTxHash = txHash(1);
+        byte[] secondTxHash = txHash(2);
+
+        // Both donations are needed to reach goal
+        Map<Integer, List<TestAPI.TestTransaction>> donationsByHeight = new HashMap<>();
+        donationsByHeight.put(2, List.of(new TestAPI.TestTransaction(firstTxHash, donorAddress(0), TestAPI.AT_ADDRESS, GOAL_AMOUNT / 2)));
+        donationsByHeight.put(5, List.of(new TestAPI.TestTransaction(secondTxHash, donorAddress(1), TestAPI.AT_ADDRESS, GOAL_AMOUNT / 2)));
+
+        int finalHeight = SLEEP_MINUTES * 5;
+
+        // Cached, then extended with new transaction and height
+        TestApiSimulator extendedSimulator = new TestApiSimulator(donationsByHeight);
+        CampaignOutcomeCache cache = new CampaignOutcomeCache(1_000_000L);
+
+        cache.getState(codeBytes, dataBytes, List.of(firstTxHash), 3, extendedSimulator);
+        byte[] extendedState = cache.getState(codeBytes, dataBytes, List.of(firstTxHash, secondTxHash), finalHeight, extendedSimulator);
+
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getExtensions());
+
+        // Executed from deployment in one go
+        TestApiSimulator freshSimulator = new TestApiSimulator(donationsByHeight);
+        byte[] freshState = new CampaignOutcomeCache(1_000_000L).getState(codeBytes, dataBytes, List.of(firstTxHash, secondTxHash), finalHeight, freshSimulator);
+
+        assertArrayEquals(freshState, extendedState);
+        assertTrue(freshSimulator.load(codeBytes, freshState).isFinished());
+    }
+
+    private static byte[] data(int campaign) {
+        byte[] dataBytes = new byte[Qrowdfund.DATA_LENGTH];
+        dataBytes[0] = (byte) campaign;
+        return dataBytes;
+    }
+
+    private static List<byte[]> transactions(int count) {
+        List<byte[]> transactions = new ArrayList<>();
+
+        for (int i = 0; i < count; ++i)
+            transactions.add(new byte[] { (byte) i, (byte) (i >> 8) });
+
+        return transactions;
+    }
+
+    private static String donorAddress(int donorIndex) {
+        return String.format("Q_donor_%02d", donorIndex);
+    }
+
+    private static byte[] txHash(int seed) {
+        byte[] txHash = new byte[32];
+        Arrays.fill(txHash, (byte) seed);
+        return txHash;
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] combined = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, combined, first.length, second.length);
+        return combined;
+    }
+}
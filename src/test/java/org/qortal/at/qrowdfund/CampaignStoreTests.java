@@ -0,0 +1,183 @@
+package org.qortal.at.qrowdfund;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.*;
+
+public class CampaignStoreTests {
+
+    private static final String AWARDEE_ADDRESS = "QdSnUy6sUiEnaN87dWmE92g1uQjrvPgrWG";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void creation_bytes_are_reconstructed() throws IOException {
+        Path path = temporaryFolder.getRoot().toPath().resolve("campaigns.qfcs");
+        int campaignCount = 1000;
+
+        try (CampaignStore store = CampaignStore.openQrowdfund(path)) {
+            for (int i = 0; i < campaignCount; ++i)
+                assertEquals(i, store.append(Qrowdfund.buildDataBytes(10 + i, 100_0000L + i, AWARDEE_ADDRESS)));
+        }
+
+        // Code bytes stored once, plus one data segment per campaign
+        assertTrue(Files.size(path) < Qrowdfund.getCodeBytes().length * 2L + (long) campaignCount * Qrowdfund.DATA_LENGTH);
+
+        try (CampaignStore store = CampaignStore.openQrowdfund(path)) {
+            assertEquals(campaignCount, store.size());
+
+            // Random-ish access order
+            for (int i = campaignCount - 1; i >= 0; i -= 7)
+                assertArrayEquals(Qrowdfund.buildQortalAT(10 + i, 100_0000L + i, AWARDEE_ADDRESS), store.getCreationBytes(i));
+        }
+    }
+
+    @Test
+    public void reads_see_later_appends() throws IOException {
+        Path path = temporaryFolder.getRoot().toPath().resolve("campaigns.qfcs");
+
+        try (CampaignStore store = CampaignStore.openQrowdfund(path)) {
+            byte[] firstData = Qrowdfund.buildDataBytes(60, 10_4000_0000L, AWARDEE_ADDRESS);
+            byte[] secondData = Qrowdfund.buildDataBytes(1440, 20_0000_0000L, AWARDEE_ADDRESS);
+
+            store.append(firstData);
+            assertArrayEquals(firstData, store.getDataBytes(0));
+
+            store.append(secondData);
+            assertArrayEquals(secondData, store.getDataBytes(1));
+            assertArrayEquals(firstData, store.getDataBytes(0));
+        }
+    }
+
+    @Test
+    public void partial_record_is_discarded() throws IOException {
+        Path path = temporaryFolder.getRoot().toPath().resolve("campaigns.qfcs");
+
+        try (CampaignStore store = CampaignStore.openQrowdfund(path)) {
+            store.append(Qrowdfund.buildDataBytes(60, 10_4000_0000L, AWARDEE_ADDRESS));
+        }
+
+        // Simulate interrupted append
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[Qrowdfund.DATA_LENGTH / 2]));
+        }
+
+        try (CampaignStore store = CampaignStore.openQrowdfund(path)) {
+            assertEquals(1, store.size());
+
+            store.append(Qrowdfund.buildDataBytes(1440, 20_0000_0000L, AWARDEE_ADDRESS));
+            assertArrayEquals(Qrowdfund.buildQortalAT(1440, 20_0000_0000L, AWARDEE_ADDRESS), store.getCreationBytes(1));
+        }
+    }
+
+    @Test
+    public void interleaved_appends_and_reads_rarely_remap() throws IOException {
+        Path path = temporaryFolder.getRoot().toPath().resolve("campaigns.qfcs");
+        int campaignCount = 5000;
+
+        try (CampaignStore store = CampaignStore.openQrowdfund(path)) {
+            for (int i = 0; i < campaignCount; ++i) {
+                byte[] dataBytes = Qrowdfund.buildDataBytes(10 + i, 100_0000L + i, AWARDEE_ADDRESS);
+
+                int index = store.append(dataBytes);
+                assertArrayEquals(dataBytes, store.getDataBytes(index));
+            }
+
+            // Earlier records still readable after remapping
+            assertArrayEquals(Qrowdfund.buildDataBytes(10, 100_0000L, AWARDEE_ADDRESS), store.getDataBytes(0));
+
+            assertTrue(store.getMappingCount() <= 3);
+        }
+    }
+
+    @Test
+    public void read_only_open_leaves_partial_record() throws IOException {
+        Path path = temporaryFolder.getRoot().toPath().resolve("campaigns.qfcs");
+
+        try (CampaignStore store = CampaignStore.openQrowdfund(path)) {
+            store.append(Qrowdfund.buildDataBytes(60, 10_4000_0000L, AWARDEE_ADDRESS));
+        }
+
+        // Simulate append in progress
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[Qrowdfund.DATA_LENGTH / 2]));
+        }
+
+        long fileSize = Files.size(path);
+
+        try (CampaignStore store = CampaignStore.open(path)) {
+            assertTrue(store.isReadOnly());
+            assertEquals(1, store.size());
+            assertArrayEquals(Qrowdfund.buildQortalAT(60, 10_4000_0000L, AWARDEE_ADDRESS), store.getCreationBytes(0));
+        }
+
+        assertEquals(fileSize, Files.size(path));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void read_only_store_rejects_append() throws IOException {
+        Path path = temporaryFolder.getRoot().toPath().resolve("campaigns.qfcs");
+        CampaignStore.openQrowdfund(path).close();
+
+        try (CampaignStore store = CampaignStore.open(path)) {
+            store.append(Qrowdfund.buildDataBytes(60, 10_4000_0000L, AWARDEE_ADDRESS));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void only_one_appender() throws IOException {
+        Path path = temporaryFolder.getRoot().toPath().resolve("campaigns.qfcs");
+
+        try (CampaignStore store = CampaignStore.openQrowdfund(path)) {
+            CampaignStore.openForAppend(path).close();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void mismatched_creation_parameters_are_rejected() throws IOException {
+        Path path = temporaryFolder.getRoot().toPath().resolve("campaigns.qfcs");
+
+        CampaignStore.create(path, Qrowdfund.getCodeBytes(), Qrowdfund.DATA_LENGTH, Qrowdfund.CIYAM_AT_VERSION,
+                Qrowdfund.NUM_CALL_STACK_PAGES, Qrowdfund.NUM_USER_STACK_PAGES, Qrowdfund.MIN_ACTIVATION_AMOUNT + 1).close();
+
+        CampaignStore.openQrowdfund(path);
+    }
+
+    @Test(expected = IOException.class)
+    public void mismatched_data_length_is_rejected() throws IOException {
+        Path path = temporaryFolder.getRoot().toPath().resolve("campaigns.qfcs");
+
+        CampaignStore.create(path, Qrowdfund.getCodeBytes(), Qrowdfund.DATA_LENGTH + 8, Qrowdfund.CIYAM_AT_VERSION,
+                Qrowdfund.NUM_CALL_STACK_PAGES, Qrowdfund.NUM_USER_STACK_PAGES, Qrowdfund.MIN_ACTIVATION_AMOUNT).close();
+
+        CampaignStore.openQrowdfund(path);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void index_out_of_range() throws IOException {
+        Path path = temporaryFolder.getRoot().toPath().resolve("campaigns.qfcs");
+
+        try (CampaignStore store = CampaignStore.openQrowdfund(path)) {
+            store.getDataBytes(0);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void not_a_campaign_store() throws IOException {
+        Path path = temporaryFolder.newFile("junk").toPath();
+        Files.write(path, new byte[200]);
+
+        CampaignStore.open(path);
+    }
+
+}
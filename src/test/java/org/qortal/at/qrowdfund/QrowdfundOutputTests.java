@@ -0,0 +1,60 @@
+package org.qortal.at.qrowdfund;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class QrowdfundOutputTests {
+
+    private static final String AWARDEE_ADDRESS = "QdSnUy6sUiEnaN87dWmE92g1uQjrvPgrWG";
+
+    @Test
+    public void hex_is_lowercase_creation_bytes() {
+        byte[] creationBytes = Qrowdfund.buildQortalAT(60, 10_4000_0000L, AWARDEE_ADDRESS);
+
+        assertEquals(expectedHex(creationBytes), Qrowdfund.toHex(creationBytes));
+    }
+
+    @Test
+    public void hex_option_prints_hex() {
+        byte[] creationBytes = Qrowdfund.buildQortalAT(60, 10_4000_0000L, AWARDEE_ADDRESS);
+
+        byte[] output = runMain("-x", "60", "10.4", AWARDEE_ADDRESS);
+
+        assertEquals(expectedHex(creationBytes) + System.lineSeparator(), new String(output, StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void binary_option_prints_raw_bytes() {
+        byte[] creationBytes = Qrowdfund.buildQortalAT(60, 10_4000_0000L, AWARDEE_ADDRESS);
+
+        assertArrayEquals(creationBytes, runMain("-b", "60", "10.4", AWARDEE_ADDRESS));
+    }
+
+    private static byte[] runMain(String... args) {
+        PrintStream originalOut = System.out;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        try {
+            System.setOut(new PrintStream(output, true));
+            Qrowdfund.main(args);
+        } finally {
+            System.setOut(originalOut);
+        }
+
+        return output.toByteArray();
+    }
+
+    private static String expectedHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+
+        for (byte b : bytes)
+            hex.append(String.format("%02x", b & 0xff));
+
+        return hex.toString();
+    }
+}